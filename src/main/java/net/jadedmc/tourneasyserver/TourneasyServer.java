@@ -25,48 +25,117 @@
 package net.jadedmc.tourneasyserver;
 
 
+import com.mongodb.client.model.Projections;
 import io.javalin.Javalin;
 import net.jadedmc.tourneasyserver.database.MongoDB;
+import net.jadedmc.tourneasyserver.database.TournamentArchive;
+import net.jadedmc.tourneasyserver.routes.StageRoute;
 import net.jadedmc.tourneasyserver.routes.TournamentRoute;
+import net.jadedmc.tourneasyserver.tournament.Tournament;
+import net.jadedmc.tourneasyserver.tournament.TournamentReader;
+import net.jadedmc.tourneasyserver.tournament.TournamentScheduler;
+import net.jadedmc.tourneasyserver.tournament.TournamentStatus;
+import net.jadedmc.tourneasyserver.tournament.bracket.BracketCache;
+import net.jadedmc.tourneasyserver.tournament.stage.Stage;
+import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class TourneasyServer {
+    private static BracketCache bracketCache;
     private static MongoDB mongoDB;
     private static Javalin javalin;
+    private static TournamentScheduler tournamentScheduler;
+    private static TournamentArchive tournamentArchive;
+    private static TournamentReader tournamentReader;
 
     public static void main(String[] args) {
         final Logger logger = LoggerFactory.getLogger("[Javalin]");
+        final Properties properties = new Properties();
 
+        // Load the config once, for every part of the server.
         try {
-            // Load the server port from config.properties
             final InputStream inputStream = TourneasyServer.class.getClassLoader().getResourceAsStream("config.properties");
-            final Properties properties = new Properties();
             properties.load(inputStream);
+        }
+        catch (IOException exception) {
+            logger.error("Could not load config.properties.");
+            logger.error(exception.getMessage());
+            return;
+        }
+
+        final ExecutorService startupExecutor = Executors.newFixedThreadPool(4);
+
+        try {
+            // Connects to MongoDB and creates the Javalin app at the same time, since neither depends on the other.
+            final CompletableFuture<MongoDB> mongoDBFuture = CompletableFuture.supplyAsync(() -> new MongoDB(properties), startupExecutor);
+            final CompletableFuture<Javalin> javalinFuture = CompletableFuture.supplyAsync(Javalin::create, startupExecutor);
+
+            // Setup the limits for tournament requests.
+            tournamentReader = new TournamentReader(
+                    Long.parseLong(properties.getProperty("max-request-bytes", "8388608")),
+                    Integer.parseInt(properties.getProperty("max-participants", "10000")),
+                    Integer.parseInt(properties.getProperty("max-teams", "5000")),
+                    Integer.parseInt(properties.getProperty("max-stages", "32")),
+                    Integer.parseInt(properties.getProperty("max-matches", "20000")));
+
+            // Setup the cache for rendered brackets.
+            bracketCache = new BracketCache(Integer.parseInt(properties.getProperty("bracket-cache-size", "1024")));
+
+            // Everything after this needs MongoDB, so the server does not start without it.
+            mongoDB = mongoDBFuture.join();
+            if(!mongoDB.isConnected()) {
+                logger.error("Could not start Javalin server, as MongoDB is not available.");
+                shutdown();
+                return;
+            }
+
+            // Setup the archive for finished tournaments.
+            final long archiveAfter = TimeUnit.DAYS.toMillis(Long.parseLong(properties.getProperty("archive-after-days", "30")));
+            tournamentArchive = new TournamentArchive(archiveAfter, Integer.parseInt(properties.getProperty("archive-cache-size", "256")));
+
+            // Rebuilds the scheduler's timers and warms up running tournaments at the same time.
+            tournamentScheduler = new TournamentScheduler();
+            CompletableFuture.allOf(
+                    CompletableFuture.runAsync(tournamentScheduler::load, startupExecutor),
+                    CompletableFuture.runAsync(() -> preloadRunningTournaments(startupExecutor), startupExecutor)
+            ).join();
 
-            // Setup Javalin app.
-            javalin = Javalin.create().start(Integer.parseInt(properties.getProperty("port")));
+            // Setup Javalin app, now that everything it serves is ready.
+            javalin = javalinFuture.join();
 
             // Load routes.
             javalin.post("/api/tournament/create", TournamentRoute::createTournament);
             javalin.get("/api/tournament/get/{id}", TournamentRoute::getTournament);
+            javalin.post("/api/tournament/checkin/{id}/{participant}", TournamentRoute::checkIn);
+            javalin.get("/api/tournament/bracket/{id}/{stage}", StageRoute::getBracket);
+            javalin.post("/api/tournament/match/{id}/{stage}/{match}", StageRoute::reportMatchResult);
+
+            javalin.start(Integer.parseInt(properties.getProperty("port")));
         }
-        catch (IOException exception) {
+        catch (RuntimeException exception) {
+            // Covers failed startup steps, an invalid config value, and the port already being in use.
             logger.error("Could not start Javalin server.");
             logger.error(exception.getMessage());
-
-            if(javalin != null) {
-                javalin.stop();
-            }
+            shutdown();
+            return;
+        }
+        finally {
+            startupExecutor.shutdown();
         }
-
-        // Setup MongoDB.
-        mongoDB = new MongoDB();
 
         // Creates a new thread for processing commands to the server.
         new Thread(() -> {
@@ -79,13 +148,97 @@ public class TourneasyServer {
                         logger.info("Javalin server already stopped.");
                     }
 
-                    javalin.stop();
+                    shutdown();
                 }
             }
         }).start();
     }
 
+    /**
+     * Loads running tournaments and renders their brackets, so the first views after a restart
+     * are served from memory instead of all hitting MongoDB at once.
+     * This is only a warm-up, so errors are logged and never stop the server from starting.
+     * @param executor Executor to render the tournaments on.
+     */
+    private static void preloadRunningTournaments(final Executor executor) {
+        final Logger logger = LoggerFactory.getLogger("[Preload]");
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        // Only reads the fields needed to render brackets.
+        final Bson projection = Projections.include("id", "createdAt", "teamSize", "participants", "teams", "stages");
+
+        try {
+            // Stops once the bracket cache is full, as rendering more would only evict earlier stages.
+            int stages = 0;
+            for(final Document document : mongoDB.getDatabase().getCollection("tournaments").find(new Document("status", TournamentStatus.RUNNING.name())).projection(projection)) {
+                stages += document.get("stages", new Document()).size();
+                if(stages > bracketCache.getSize()) {
+                    break;
+                }
+
+                // Renders tournaments while the rest are still being read.
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        final Tournament tournament = new Tournament(document);
+
+                        for(final Stage stage : tournament.getStages()) {
+                            bracketCache.get(tournament, stage);
+                        }
+                    }
+                    catch (RuntimeException exception) {
+                        logger.error("Could not preload tournament " + document.getString("id") + ".");
+                        logger.error(exception.getMessage());
+                    }
+                }, executor));
+            }
+        }
+        catch (RuntimeException exception) {
+            logger.error("Could not read running tournaments.");
+            logger.error(exception.getMessage());
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        logger.info("Preloaded {} running tournaments.", futures.size());
+    }
+
+    /**
+     * Stops everything that has been started, so a failed startup does not leave threads or connections behind.
+     */
+    private static void shutdown() {
+        if(javalin != null) {
+            javalin.stop();
+        }
+
+        if(tournamentScheduler != null) {
+            tournamentScheduler.stop();
+        }
+
+        if(tournamentArchive != null) {
+            tournamentArchive.stop();
+        }
+
+        if(mongoDB != null && mongoDB.getClient() != null) {
+            mongoDB.getClient().close();
+        }
+    }
+
+    public static BracketCache getBracketCache() {
+        return bracketCache;
+    }
+
     public static MongoDB getMongoDB() {
         return mongoDB;
     }
+
+    public static TournamentArchive getTournamentArchive() {
+        return tournamentArchive;
+    }
+
+    public static TournamentReader getTournamentReader() {
+        return tournamentReader;
+    }
+
+    public static TournamentScheduler getTournamentScheduler() {
+        return tournamentScheduler;
+    }
 }
\ No newline at end of file
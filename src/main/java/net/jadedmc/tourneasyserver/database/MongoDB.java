@@ -26,19 +26,24 @@ package net.jadedmc.tourneasyserver.database;
 
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoException;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
-import net.jadedmc.tourneasyserver.TourneasyServer;
+import com.mongodb.client.model.ReturnDocument;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * Manages the connection process to MongoDB.
@@ -47,19 +52,16 @@ public class MongoDB {
     private MongoClient client;
     private MongoDatabase database;
     private Logger logger;
+    private boolean connected = false;
 
     /**
      * Connects to MongoDB.
+     * @param properties Server config, containing the connection String.
      */
-    public MongoDB() {
+    public MongoDB(final Properties properties) {
         this.logger = LoggerFactory.getLogger("[MongoDB]");
 
         try {
-            // Load the connection String from config.properties
-            final InputStream inputStream = TourneasyServer.class.getClassLoader().getResourceAsStream("config.properties");
-            final Properties properties = new Properties();
-            properties.load(inputStream);
-
             // Generate the connection.
             final ConnectionString connectionString = new ConnectionString(properties.getProperty("mongodb-connection"));
             final MongoClientSettings settings = MongoClientSettings.builder().applyConnectionString(connectionString).build();
@@ -67,13 +69,26 @@ public class MongoDB {
             // Connect to and setup MongoDB.
             client = MongoClients.create(settings);
             database = client.getDatabase("tourneasy");
-            database.createCollection("tournaments");
-            database.getCollection("tournaments").createIndex(Indexes.text("id"));
-            database.getCollection("tournaments").createIndex(Indexes.ascending("createdAt"));
 
+            // Only creates the collection and indexes that do not exist yet.
+            if(!database.listCollectionNames().into(new HashSet<>()).contains("tournaments")) {
+                database.createCollection("tournaments");
+            }
+
+            final MongoCollection<Document> tournaments = database.getCollection("tournaments");
+            final Set<String> tournamentIndexes = getIndexNames(tournaments);
+            createIndex(tournaments, tournamentIndexes, "id_text", Indexes.text("id"), new IndexOptions());
+            createIndex(tournaments, tournamentIndexes, "id_1", Indexes.ascending("id"), new IndexOptions());
+            createIndex(tournaments, tournamentIndexes, "createdAt_1", Indexes.ascending("createdAt"), new IndexOptions());
+            createIndex(tournaments, tournamentIndexes, "status_1_finishedAt_1", Indexes.ascending("status", "finishedAt"), new IndexOptions());
+
+            final MongoCollection<Document> archivedTournaments = database.getCollection("archived_tournaments");
+            createIndex(archivedTournaments, getIndexNames(archivedTournaments), "id_1", Indexes.ascending("id"), new IndexOptions().unique(true));
+
+            connected = true;
             logger.info("MongoDB connected and setup successfully!");
         }
-        catch (IOException exception) {
+        catch (MongoException exception) {
             logger.error("Could not connect to MongoDB!");
             logger.error(exception.getMessage());
         }
@@ -103,11 +118,75 @@ public class MongoDB {
         return database;
     }
 
+    /**
+     * Atomically applies an update to the tournament document matching a filter.
+     * @param filter Filter the tournament document has to match.
+     * @param update Update to apply.
+     * @return The updated document, or null if no document matched the filter.
+     */
+    public Document findAndUpdateTournamentDocument(final Document filter, final Document update) {
+        return database.getCollection("tournaments").findOneAndUpdate(filter, update, new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+    }
+
+    /**
+     * Atomically applies an update to the tournament document matching a filter, returning only some fields.
+     * @param filter Filter the tournament document has to match.
+     * @param update Update to apply.
+     * @param projection Fields of the updated document to return.
+     * @return The updated partial document, or null if no document matched the filter.
+     */
+    public Document findAndUpdateTournamentDocument(final Document filter, final Document update, final Bson projection) {
+        return database.getCollection("tournaments").findOneAndUpdate(filter, update, new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER).projection(projection));
+    }
+
     public Document getTournamentDocument(final String tournamentID) {
         return database.getCollection("tournaments").find(new Document("id", tournamentID)).limit(1).first();
     }
 
+    /**
+     * Gets only some fields of a tournament document.
+     * @param tournamentID ID of the tournament.
+     * @param projection Fields to return.
+     * @return The partial tournament document, or null if there is none.
+     */
+    public Document getTournamentDocument(final String tournamentID, final Bson projection) {
+        return database.getCollection("tournaments").find(new Document("id", tournamentID)).projection(projection).limit(1).first();
+    }
+
+    /**
+     * Gets whether MongoDB connected and was set up successfully.
+     * @return Whether MongoDB is ready to use.
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Checks if an ID can be safely used as part of a field path, such as "participants.{id}.checkedIn".
+     * IDs containing "." would point at nested fields, and IDs starting with "$" are operators.
+     * @param id ID to check.
+     * @return Whether the ID is safe to use.
+     */
+    public static boolean isValidFieldName(final String id) {
+        return id != null && !id.isEmpty() && !id.contains(".") && !id.startsWith("$");
+    }
+
     public void insertTournamentDocument(final Document document) {
         database.getCollection("tournaments").insertOne(document);
     }
+
+    private void createIndex(final MongoCollection<Document> collection, final Set<String> existingIndexes, final String name, final Bson keys, final IndexOptions options) {
+        if(!existingIndexes.contains(name)) {
+            collection.createIndex(keys, options.name(name));
+        }
+    }
+
+    private Set<String> getIndexNames(final MongoCollection<Document> collection) {
+        final Set<String> indexNames = new HashSet<>();
+        for(final Document index : collection.listIndexes()) {
+            indexNames.add(index.getString("name"));
+        }
+
+        return indexNames;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+/*
+ * This file is part of tourneasy-server, licensed under the MIT License.
+ *
+ *  Copyright (c) JadedMC
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package net.jadedmc.tourneasyserver.database;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOptions;
+import net.jadedmc.tourneasyserver.TourneasyServer;
+import net.jadedmc.tourneasyserver.tournament.TournamentStatus;
+import org.bson.BSONException;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.Binary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves finished tournaments out of the "tournaments" collection and into "archived_tournaments",
+ * so the hot collection and its indexes only hold active tournaments.
+ * Archived tournaments are stored as a single gzipped BSON blob, and are decompressed on demand
+ * through a small LRU cache.
+ */
+public class TournamentArchive {
+    private final DocumentCodec codec = new DocumentCodec();
+    private final Map<String, CachedTournament> cache;
+    private final ScheduledExecutorService executor;
+    private final Logger logger;
+    private final long archiveAfter;
+
+    /**
+     * Creates the archive, and starts archiving old tournaments every hour.
+     * @param archiveAfter How long after finishing a tournament is archived, in milliseconds.
+     * @param cacheSize How many archived tournaments are kept decompressed in memory.
+     */
+    public TournamentArchive(final long archiveAfter, final int cacheSize) {
+        this.logger = LoggerFactory.getLogger("[Archive]");
+        this.archiveAfter = archiveAfter;
+
+        // Access ordered, so the least recently viewed tournament is dropped first.
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CachedTournament> eldest) {
+                return size() > cacheSize;
+            }
+        });
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "TournamentArchive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleWithFixedDelay(this::archiveFinishedTournaments, 1, 60, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Archives every tournament that finished longer ago than the archive age.
+     * The archived copy is written before the original is deleted, so a crash never loses a tournament.
+     */
+    public void archiveFinishedTournaments() {
+        try {
+            final MongoCollection<Document> tournaments = TourneasyServer.getMongoDB().getDatabase().getCollection("tournaments");
+            final MongoCollection<Document> archive = TourneasyServer.getMongoDB().getDatabase().getCollection("archived_tournaments");
+
+            final Document filter = new Document("status", TournamentStatus.FINISHED.name())
+                    .append("finishedAt", new Document("$lt", System.currentTimeMillis() - archiveAfter));
+
+            int archived = 0;
+            for(final Document document : tournaments.find(filter).batchSize(100)) {
+                final Document archivedDocument = new Document()
+                        .append("id", document.getString("id"))
+                        .append("finishedAt", document.getLong("finishedAt"))
+                        .append("archivedAt", System.currentTimeMillis())
+                        .append("data", new Binary(compress(document)));
+
+                archive.replaceOne(new Document("id", document.getString("id")), archivedDocument, new ReplaceOptions().upsert(true));
+                TourneasyServer.getMongoDB().deleteTournamentDocument(document);
+                archived++;
+            }
+
+            if(archived > 0) {
+                logger.info("Archived {} tournaments.", archived);
+            }
+        }
+        catch (Exception exception) {
+            logger.error("Could not archive finished tournaments.");
+            logger.error(exception.getMessage());
+        }
+    }
+
+    /**
+     * Gets an archived tournament, decompressing it if it is not already cached.
+     * A tournament id can be re-created and archived again, so the cached copy is only used
+     * if it was archived at the same time as the stored one.
+     * @param tournamentID ID of the tournament.
+     * @return The tournament's document, or null if it is not archived.
+     */
+    public Document getTournamentDocument(final String tournamentID) {
+        final MongoCollection<Document> archive = TourneasyServer.getMongoDB().getDatabase().getCollection("archived_tournaments");
+
+        // Reads only when the tournament was archived, which is all a cache hit needs.
+        final Document archivedInfo = archive.find(new Document("id", tournamentID)).projection(Projections.include("archivedAt")).limit(1).first();
+        if(archivedInfo == null) {
+            return null;
+        }
+
+        final long archivedAt = archivedInfo.getLong("archivedAt");
+        final CachedTournament cached = cache.get(tournamentID);
+        if(cached != null && cached.archivedAt == archivedAt) {
+            return cached.document;
+        }
+
+        final Document archivedDocument = archive.find(new Document("id", tournamentID)).limit(1).first();
+        if(archivedDocument == null) {
+            return null;
+        }
+
+        try {
+            final Document document = decompress(archivedDocument.get("data", Binary.class).getData());
+            cache.put(tournamentID, new CachedTournament(archivedDocument.getLong("archivedAt"), document));
+            return document;
+        }
+        catch (IOException | BSONException exception) {
+            // The stored data is corrupt.
+            logger.error("Could not load archived tournament " + tournamentID + ".");
+            logger.error(exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stops archiving tournaments.
+     */
+    public void stop() {
+        executor.shutdown();
+    }
+
+    private byte[] compress(final Document document) throws IOException {
+        // Encodes the document as BSON, which keeps field types intact unlike JSON.
+        final BasicOutputBuffer buffer = new BasicOutputBuffer();
+        codec.encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try(final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(buffer.toByteArray());
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * A decompressed tournament, along with when it was archived.
+     */
+    private static class CachedTournament {
+        private final long archivedAt;
+        private final Document document;
+
+        private CachedTournament(final long archivedAt, final Document document) {
+            this.archivedAt = archivedAt;
+            this.document = document;
+        }
+    }
+
+    private Document decompress(final byte[] data) throws IOException {
+        try(final GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return codec.decode(new BsonBinaryReader(ByteBuffer.wrap(gzipInputStream.readAllBytes())), DecoderContext.builder().build());
+        }
+    }
+}
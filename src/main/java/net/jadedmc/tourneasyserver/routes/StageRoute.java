@@ -0,0 +1,259 @@
+/*
+ * This file is part of tourneasy-server, licensed under the MIT License.
+ *
+ *  Copyright (c) JadedMC
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package net.jadedmc.tourneasyserver.routes;
+
+import com.mongodb.client.model.Projections;
+import io.javalin.http.Context;
+import net.jadedmc.tourneasyserver.TourneasyServer;
+import net.jadedmc.tourneasyserver.database.MongoDB;
+import net.jadedmc.tourneasyserver.tournament.Tournament;
+import net.jadedmc.tourneasyserver.tournament.TournamentStatus;
+import net.jadedmc.tourneasyserver.tournament.bracket.BracketSnapshot;
+import net.jadedmc.tourneasyserver.tournament.match.Match;
+import net.jadedmc.tourneasyserver.tournament.match.MatchStatus;
+import net.jadedmc.tourneasyserver.tournament.stage.Stage;
+import net.jadedmc.tourneasyserver.tournament.stage.StageStatus;
+import org.bson.BSONException;
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+public class StageRoute {
+    // /api/tournament/bracket/{id}/{stage}
+    public static void getBracket(final Context context) {
+        final String id = context.pathParam("id");
+        final String stageID = context.pathParam("stage");
+
+        // Return an error if the stage id cannot be used in a MongoDB field path.
+        if(!MongoDB.isValidFieldName(stageID)) {
+            context.result(new Document("error", "invalid stage id").toJson());
+            return;
+        }
+
+        // Reads only the document's _id and the stage's current version, which is all a cache hit needs.
+        // The _id changes when a tournament is re-created, which restarts its stage versions.
+        // Archived tournaments never change, so their cached copy is used as is.
+        boolean archived = false;
+        Document document = TourneasyServer.getMongoDB().getTournamentDocument(id, Projections.include("stages." + stageID + ".version"));
+        if(document == null) {
+            document = TourneasyServer.getTournamentArchive().getTournamentDocument(id);
+            archived = true;
+        }
+
+        // Return an error if no tournament is found.
+        if(document == null) {
+            context.result(new Document("error", "no tournament found with that id").toJson());
+            return;
+        }
+
+        final Document stageDocument = document.get("stages", new Document()).get(stageID, Document.class);
+
+        // Return an error if no stage is found.
+        if(stageDocument == null) {
+            context.result(new Document("error", "no stage found with that id").toJson());
+            return;
+        }
+
+        // Lets clients skip downloading a bracket they already have.
+        final String documentID = document.getObjectId("_id") == null ? "" : document.getObjectId("_id").toHexString();
+        final long version = ((Number) stageDocument.get("version", 0L)).longValue();
+        final String etag = "\"" + documentID + "-" + version + "\"";
+        context.header("ETag", etag);
+        if(etag.equals(context.header("If-None-Match"))) {
+            context.status(304);
+            return;
+        }
+
+        // Loads and renders the bracket if this version is not cached.
+        BracketSnapshot snapshot = TourneasyServer.getBracketCache().get(id, documentID, stageID, version);
+        if(snapshot == null) {
+            if(!archived) {
+                document = TourneasyServer.getMongoDB().getTournamentDocument(id);
+            }
+
+            // Return an error if the tournament was deleted or archived since the version was read.
+            if(document == null) {
+                context.result(new Document("error", "no tournament found with that id").toJson());
+                return;
+            }
+
+            final Tournament tournament = new Tournament(document);
+            final Stage stage = tournament.getStage(stageID);
+
+            // Return an error if no stage is found.
+            if(stage == null) {
+                context.result(new Document("error", "no stage found with that id").toJson());
+                return;
+            }
+
+            snapshot = TourneasyServer.getBracketCache().get(tournament, stage);
+
+            // The stage changed between the two reads, so labels the response with the version actually sent.
+            context.header("ETag", "\"" + snapshot.getDocumentID() + "-" + snapshot.getVersion() + "\"");
+        }
+
+        if("svg".equals(context.queryParam("format"))) {
+            context.contentType("image/svg+xml");
+            context.result(snapshot.toSVG());
+            return;
+        }
+
+        context.contentType("application/json");
+        context.result(snapshot.toJson());
+    }
+
+    // /api/tournament/match/{id}/{stage}/{match}
+    public static void reportMatchResult(final Context context) {
+        final String id = context.pathParam("id");
+        final String stageID = context.pathParam("stage");
+        final String matchID = context.pathParam("match");
+
+        // Return an error if the ids cannot be used in MongoDB field paths.
+        if(!MongoDB.isValidFieldName(stageID) || !MongoDB.isValidFieldName(matchID)) {
+            context.result(new Document("error", "invalid stage or match id").toJson());
+            return;
+        }
+
+        // Reads the scores from the request.
+        final List<Integer> scores;
+        try {
+            scores = Document.parse(context.body()).getList("scores", Integer.class);
+        }
+        catch (BSONException | JsonParseException | ClassCastException exception) {
+            context.result(new Document("error", "invalid match result JSON").toJson());
+            return;
+        }
+
+        if(scores == null || scores.size() != 2 || scores.contains(null)) {
+            context.result(new Document("error", "match results need exactly two scores").toJson());
+            return;
+        }
+
+        final Document document = TourneasyServer.getMongoDB().getTournamentDocument(id);
+
+        // Return an error if no tournament is found.
+        if(document == null) {
+            context.result(new Document("error", "no tournament found with that id").toJson());
+            return;
+        }
+
+        final Tournament tournament = new Tournament(document);
+        final Stage stage = tournament.getStage(stageID);
+
+        // Return an error if no stage is found.
+        if(stage == null) {
+            context.result(new Document("error", "no stage found with that id").toJson());
+            return;
+        }
+
+        // Results can only be reported while the stage is being played.
+        // This also keeps results from being lost while a finished tournament is being archived.
+        if(tournament.getStatus() != TournamentStatus.RUNNING || stage.getStatus() != StageStatus.STARTED) {
+            context.result(new Document("error", "stage is not being played").toJson());
+            return;
+        }
+
+        final Match match = stage.getMatch(matchID);
+
+        // Return an error if no match is found.
+        if(match == null) {
+            context.result(new Document("error", "no match found with that id").toJson());
+            return;
+        }
+
+        // Return an error if the match already has a result.
+        if(match.getStatus() == MatchStatus.FINISH) {
+            context.result(new Document("error", "match is already finished").toJson());
+            return;
+        }
+
+        // Return an error if the match cannot be decided.
+        if(match.getEntrants().contains(null)) {
+            context.result(new Document("error", "match does not have both entrants yet").toJson());
+            return;
+        }
+
+        if(scores.get(0).equals(scores.get(1))) {
+            context.result(new Document("error", "match cannot end in a tie").toJson());
+            return;
+        }
+
+        final String winner = match.getEntrants().get(scores.get(0) > scores.get(1) ? 0 : 1);
+        final String stagePath = "stages." + stageID;
+        final String matchPath = stagePath + ".matches." + matchID;
+        final Collection<String> changedMatches = new ArrayList<>(Arrays.asList(matchID));
+
+        final Document changes = new Document()
+                .append(matchPath + ".scores", scores)
+                .append(matchPath + ".winner", winner)
+                .append(matchPath + ".status", MatchStatus.FINISH.name());
+
+        // Moves the winner on to their next match.
+        final Match nextMatch = match.getNextMatch() == null ? null : stage.getMatch(match.getNextMatch());
+        if(nextMatch != null) {
+            // Return an error if the next match has already been played, as its entrants can no longer change.
+            if(nextMatch.getStatus() != MatchStatus.WAITING) {
+                context.result(new Document("error", "next match has already started").toJson());
+                return;
+            }
+
+            // Any other slot would pad the entrants list with nulls.
+            if(match.getNextSlot() != 0 && match.getNextSlot() != 1) {
+                context.result(new Document("error", "match has an invalid next slot").toJson());
+                return;
+            }
+
+            changes.append(stagePath + ".matches." + nextMatch.getID() + ".entrants." + match.getNextSlot(), winner);
+            changedMatches.add(nextMatch.getID());
+        }
+
+        // Only applies the result if the tournament, stage and matches have not changed since they were read.
+        // Match statuses only change along with the version, so the version covers them.
+        // The _id is checked too, since a re-created tournament starts its versions over.
+        final Document filter = new Document("_id", document.getObjectId("_id"))
+                .append("id", id)
+                .append("status", TournamentStatus.RUNNING.name())
+                .append(stagePath + ".status", StageStatus.STARTED.name())
+                .append(stagePath + ".version", document.get("stages", Document.class).get(stageID, Document.class).get("version"));
+        final Document update = new Document("$set", changes).append("$inc", new Document(stagePath + ".version", 1L));
+        final Document updatedDocument = TourneasyServer.getMongoDB().findAndUpdateTournamentDocument(filter, update);
+
+        // Return an error if something else changed the stage first.
+        if(updatedDocument == null) {
+            context.result(new Document("error", "stage was changed at the same time, or is no longer being played").toJson());
+            return;
+        }
+
+        // Updates the bracket while the new version of the stage is at hand.
+        final Tournament updatedTournament = new Tournament(updatedDocument);
+        TourneasyServer.getBracketCache().update(updatedTournament, updatedTournament.getStage(stageID), changedMatches);
+
+        context.result(updatedTournament.getStage(stageID).getMatch(matchID).toDocument().toJson());
+    }
+}
@@ -25,21 +25,68 @@
 package net.jadedmc.tourneasyserver.routes;
 
 
+import com.mongodb.client.model.Projections;
 import io.javalin.http.Context;
 import net.jadedmc.tourneasyserver.TourneasyServer;
+import net.jadedmc.tourneasyserver.database.MongoDB;
 import net.jadedmc.tourneasyserver.tournament.Tournament;
+import net.jadedmc.tourneasyserver.tournament.TournamentStatus;
+import org.bson.BSONException;
 import org.bson.Document;
+import org.bson.json.JsonParseException;
 
 public class TournamentRoute {
+    // /api/tournament/checkin/{id}/{participant}
+    public static void checkIn(final Context context) {
+        final String id = context.pathParam("id");
+        final String participantID = context.pathParam("participant");
+
+        // Return an error if the participant id cannot be used in a MongoDB field path.
+        if(!MongoDB.isValidFieldName(participantID)) {
+            context.result(new Document("error", "invalid participant id").toJson());
+            return;
+        }
+
+        // Only checks in participants of tournaments that are open for check-in.
+        final Document filter = new Document("id", id)
+                .append("status", TournamentStatus.WAITING.name())
+                .append("participants." + participantID, new Document("$exists", true));
+        final Document update = new Document("$set", new Document("participants." + participantID + ".checkedIn", true));
+        // Only returns the participant, rather than the whole tournament.
+        final Document document = TourneasyServer.getMongoDB().findAndUpdateTournamentDocument(filter, update, Projections.include("participants." + participantID));
+
+        // Return an error if the participant could not be checked in.
+        if(document == null) {
+            context.result(new Document("error", "tournament is not open for check-in or participant not found").toJson());
+            return;
+        }
+
+        context.result(document.get("participants", Document.class).get(participantID, Document.class).toJson());
+    }
+
     // /api/tournament/create
     public static void createTournament(final Context context) {
-        if(context.body().isEmpty()) {
+        // Rejects oversized requests before reading anything, when the client says how big they are.
+        if(context.contentLength() > TourneasyServer.getTournamentReader().getMaxBytes()) {
+            context.result(new Document("error", "request body is larger than " + TourneasyServer.getTournamentReader().getMaxBytes() + " bytes").toJson());
+            return;
+        }
+
+        // Reads the tournament straight from the request body.
+        final Tournament.Builder builder;
+        try {
+            builder = TourneasyServer.getTournamentReader().read(context.bodyInputStream());
+        }
+        catch (IllegalArgumentException exception) {
+            context.result(new Document("error", exception.getMessage()).toJson());
+            return;
+        }
+        catch (BSONException | JsonParseException exception) {
             context.result(new Document("error", "invalid tournament JSON").toJson());
             return;
         }
 
-        final Document document = Document.parse(context.body());
-        final Tournament tournament = new Tournament.Builder(document).build();
+        final Tournament tournament = builder.build();
 
         context.result(tournament.toDocument().toJson());
     }
@@ -54,8 +101,11 @@ public class TournamentRoute {
             return;
         }
 
-        // Finds the tournament with that id.
-        final Document document = TourneasyServer.getMongoDB().getDatabase().getCollection("tournaments").find(new Document("id", id)).limit(1).first();
+        // Finds the tournament with that id, falling back to the archive for old tournaments.
+        Document document = TourneasyServer.getMongoDB().getTournamentDocument(id);
+        if(document == null) {
+            document = TourneasyServer.getTournamentArchive().getTournamentDocument(id);
+        }
 
         // Return an error if no tournament is found.
         if(document == null) {
@@ -0,0 +1,202 @@
+/*
+ * This file is part of tourneasy-server, licensed under the MIT License.
+ *
+ *  Copyright (c) JadedMC
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package net.jadedmc.tourneasyserver.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hierarchical timing wheel, used to run large amounts of timers from a single thread.
+ * Time is split into ticks. Each level of the wheel has 64 slots, and each slot of a level covers
+ * a full turn of the level below it. Timers are stored in the lowest level that can hold them and
+ * move down a level every time the wheel above them turns, so scheduling a timer is O(1) and
+ * a tick only looks at the slots that are due.
+ */
+public class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final Timeout[][] wheel = new Timeout[LEVELS][SLOTS];
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService ticker;
+    private final Executor executor;
+    private final Logger logger;
+    private final long tickMillis;
+    private long currentTick;
+
+    // Timers too far in the future for the top level, which are re-checked every time it turns.
+    private Timeout overflow;
+
+    /**
+     * Creates and starts the timing wheel.
+     * @param tickMillis How long a single tick is, in milliseconds.
+     * @param executor Executor the timer tasks are run on, so slow tasks never hold up the wheel.
+     */
+    public TimingWheel(final long tickMillis, final Executor executor) {
+        this.logger = LoggerFactory.getLogger("[TimingWheel]");
+        this.tickMillis = tickMillis;
+        this.executor = executor;
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "TimingWheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedules a task to run at a given time.
+     * Tasks with a time in the past run on the next tick.
+     * @param deadline Time to run the task at, in epoch milliseconds.
+     * @param task Task to run.
+     * @return Timeout that can be used to cancel the task.
+     */
+    public Timeout schedule(final long deadline, final Runnable task) {
+        final Timeout timeout = new Timeout((deadline + tickMillis - 1) / tickMillis, task);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel. Timers that have not run yet are dropped.
+     */
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    private void tick() {
+        try {
+            // Adds timers that were scheduled since the last tick.
+            Timeout timeout;
+            while((timeout = pending.poll()) != null) {
+                place(timeout);
+            }
+
+            // Catches up on every tick that has passed, in case the thread fell behind.
+            final long now = System.currentTimeMillis() / tickMillis;
+            while(currentTick < now) {
+                currentTick++;
+
+                // Re-checks the overflow list when the top level completes a full turn.
+                if((currentTick & ((1L << (SLOT_BITS * LEVELS)) - 1)) == 0) {
+                    Timeout overflowed = overflow;
+                    overflow = null;
+                    placeAll(overflowed);
+                }
+
+                // Moves timers down from every level that just turned, starting from the top.
+                for(int level = LEVELS - 1; level > 0; level--) {
+                    if((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                        placeAll(takeSlot(level, (int) ((currentTick >> (SLOT_BITS * level)) & SLOT_MASK)));
+                    }
+                }
+
+                // Everything left in the current bottom slot is due.
+                placeAll(takeSlot(0, (int) (currentTick & SLOT_MASK)));
+            }
+        }
+        catch (Exception exception) {
+            logger.error("Error while processing timers.");
+            logger.error(exception.getMessage());
+        }
+    }
+
+    private Timeout takeSlot(final int level, final int slot) {
+        final Timeout head = wheel[level][slot];
+        wheel[level][slot] = null;
+        return head;
+    }
+
+    private void placeAll(Timeout timeout) {
+        while(timeout != null) {
+            final Timeout next = timeout.next;
+            timeout.next = null;
+            place(timeout);
+            timeout = next;
+        }
+    }
+
+    private void place(final Timeout timeout) {
+        // Cancelled timers are simply dropped.
+        if(timeout.cancelled) {
+            return;
+        }
+
+        // Runs the timer if it is due.
+        if(timeout.deadlineTick <= currentTick) {
+            executor.execute(timeout.task);
+            return;
+        }
+
+        // Finds the lowest level that the timer fits in.
+        for(int level = 0; level < LEVELS; level++) {
+            final int shift = SLOT_BITS * (level + 1);
+
+            if((timeout.deadlineTick >> shift) == (currentTick >> shift)) {
+                final int slot = (int) ((timeout.deadlineTick >> (SLOT_BITS * level)) & SLOT_MASK);
+                timeout.next = wheel[level][slot];
+                wheel[level][slot] = timeout;
+                return;
+            }
+        }
+
+        // Too far away for any level.
+        timeout.next = overflow;
+        overflow = timeout;
+    }
+
+    /**
+     * A single timer in the wheel.
+     */
+    public static class Timeout {
+        private final long deadlineTick;
+        private final Runnable task;
+        private volatile boolean cancelled = false;
+        private Timeout next;
+
+        private Timeout(final long deadlineTick, final Runnable task) {
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+
+        /**
+         * Cancels the timer. The timer is removed from the wheel the next time its slot is reached.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
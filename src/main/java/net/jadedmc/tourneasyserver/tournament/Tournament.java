@@ -27,6 +27,7 @@ package net.jadedmc.tourneasyserver.tournament;
 import net.jadedmc.nanoid.NanoID;
 import net.jadedmc.tourneasyserver.TourneasyServer;
 import net.jadedmc.tourneasyserver.tournament.participant.Participant;
+import net.jadedmc.tourneasyserver.tournament.stage.Stage;
 import net.jadedmc.tourneasyserver.tournament.team.Team;
 import org.bson.Document;
 
@@ -36,14 +37,22 @@ import java.util.LinkedHashSet;
 public class Tournament {
     private final Collection<Participant> participants = new LinkedHashSet<>();
     private final Collection<Team> teams = new LinkedHashSet<>();
+    private final Collection<Stage> stages = new LinkedHashSet<>();
+    private final String documentID;
     private final String id;
     private final String name;
     private final String description;
     private final String game;
     private final long createdAt;
     private final int teamSize;
+    private final TournamentStatus status;
+    private final long checkInTime;
+    private final long startTime;
+    private final long endTime;
+    private final long finishedAt;
 
     public Tournament(final Document document) {
+        this.documentID = document.getObjectId("_id") == null ? "" : document.getObjectId("_id").toHexString();
         this.id = document.getString("id");
         this.name = document.getString("name");
         this.description = document.getString("description");
@@ -51,6 +60,13 @@ public class Tournament {
         this.createdAt = document.getLong("createdAt");
         this.teamSize = document.getInteger("teamSize");
 
+        // Scheduling fields. Older documents might not have them, and a time of 0 means "not scheduled".
+        this.status = TournamentStatus.valueOf(document.get("status", TournamentStatus.SCHEDULED.name()));
+        this.checkInTime = ((Number) document.get("checkInTime", 0L)).longValue();
+        this.startTime = ((Number) document.get("startTime", 0L)).longValue();
+        this.endTime = ((Number) document.get("endTime", 0L)).longValue();
+        this.finishedAt = ((Number) document.get("finishedAt", 0L)).longValue();
+
         // Load participants.
         final Document participantsDocument = document.get("participants", Document.class);
         for(final String participantID : participantsDocument.keySet()) {
@@ -62,6 +78,51 @@ public class Tournament {
         for(final String teamID : teamsDocument.keySet()) {
             this.teams.add(new Team(teamsDocument.get(teamID, Document.class)));
         }
+
+        // Load stages.
+        final Document stagesDocument = document.get("stages", new Document());
+        for(final String stageID : stagesDocument.keySet()) {
+            this.stages.add(new Stage(stagesDocument.get(stageID, Document.class)));
+        }
+    }
+
+    /**
+     * Gets the _id of the document this tournament was loaded from.
+     * Unlike the tournament id, this changes every time the tournament is created again.
+     * @return Hex string of the document's _id, or an empty string if it was not loaded from MongoDB.
+     */
+    public String getDocumentID() {
+        return documentID;
+    }
+
+    public String getID() {
+        return id;
+    }
+
+    public Collection<Participant> getParticipants() {
+        return participants;
+    }
+
+    public Collection<Stage> getStages() {
+        return stages;
+    }
+
+    public Stage getStage(final String stageID) {
+        for(final Stage stage : this.stages) {
+            if(stage.getID().equals(stageID)) {
+                return stage;
+            }
+        }
+
+        return null;
+    }
+
+    public TournamentStatus getStatus() {
+        return status;
+    }
+
+    public Collection<Team> getTeams() {
+        return teams;
     }
 
     public Document toDocument() {
@@ -72,6 +133,11 @@ public class Tournament {
         document.append("game", game);
         document.append("createdAt", createdAt);
         document.append("teamSize", teamSize);
+        document.append("status", status.name());
+        document.append("checkInTime", checkInTime);
+        document.append("startTime", startTime);
+        document.append("endTime", endTime);
+        document.append("finishedAt", finishedAt);
 
         final Document participantsDocument = new Document();
         for(Participant participant : this.participants) {
@@ -85,6 +151,12 @@ public class Tournament {
         }
         document.append("teams", teamsDocument);
 
+        final Document stagesDocument = new Document();
+        for(final Stage stage : this.stages) {
+            stagesDocument.append(stage.getID(), stage.toDocument());
+        }
+        document.append("stages", stagesDocument);
+
         return document;
     }
 
@@ -118,52 +190,45 @@ public class Tournament {
         private String game = "";
         private int teamSize = 1;
         private long createdAt = System.currentTimeMillis();
+        private long checkInTime = 0;
+        private long startTime = 0;
+        private long endTime = 0;
         private final Collection<Participant> participants = new LinkedHashSet<>();
         private final Collection<Team> teams = new LinkedHashSet<>();
+        private final Collection<Stage> stages = new LinkedHashSet<>();
 
-        public Builder(final Document document) {
-            if(document.containsKey("id")) {
-                this.id = document.getString("id");
-            }
-
-            if(document.containsKey("name")) {
-                this.name = document.getString("name");
-            }
+        public Builder() {
 
-            if(document.containsKey("description")) {
-                this.description = document.getString("description");
-            }
+        }
 
-            if(document.containsKey("game")) {
-                this.game = document.getString("game");
-            }
+        public Builder addParticipant(final String id, final String name) {
+            final Document document = new Document().append("id", id).append("name", name);
+            this.participants.add(new Participant(document));
+            return this;
+        }
 
-            if(document.containsKey("createdAt")) {
-                this.createdAt = document.getLong("createdAt");
-            }
+        public Builder addParticipant(final Participant participant) {
+            this.participants.add(participant);
+            return this;
+        }
 
-            if(document.containsKey("teamSize")) {
-                this.teamSize = document.getInteger("teamSize");
-            }
+        public Builder addStage(final Stage stage) {
+            this.stages.add(stage);
+            return this;
+        }
 
-            if(document.containsKey("participants")) {
-                final Document participantsDocument = document.get("participants", Document.class);
-                for(final String participantID : participantsDocument.keySet()) {
-                    this.participants.add(new Participant(participantsDocument.get(participantID, Document.class)));
-                }
-            }
+        public Builder addTeam(final Team team) {
+            this.teams.add(team);
+            return this;
+        }
 
-            if(document.containsKey("teams")) {
-                final Document teamsDocument = document.get("teams", Document.class);
-                for(final String teamID : teamsDocument.keySet()) {
-                    this.teams.add(new Team(teamsDocument.get(teamID, Document.class)));
-                }
-            }
+        public Builder setCheckInTime(final long checkInTime) {
+            this.checkInTime = checkInTime;
+            return this;
         }
 
-        public Builder addParticipant(final String id, final String name) {
-            final Document document = new Document().append("id", id).append("name", name);
-            this.participants.add(new Participant(document));
+        public Builder setCreatedAt(final long createdAt) {
+            this.createdAt = createdAt;
             return this;
         }
 
@@ -182,11 +247,21 @@ public class Tournament {
             return this;
         }
 
+        public Builder setEndTime(final long endTime) {
+            this.endTime = endTime;
+            return this;
+        }
+
         public Builder setName(final String name) {
             this.name = name;
             return this;
         }
 
+        public Builder setStartTime(final long startTime) {
+            this.startTime = startTime;
+            return this;
+        }
+
         public Builder setTeamSize(final int teamSize) {
             this.teamSize = teamSize;
             return this;
@@ -200,6 +275,11 @@ public class Tournament {
             document.append("game", game);
             document.append("createdAt", createdAt);
             document.append("teamSize", teamSize);
+            document.append("status", TournamentStatus.SCHEDULED.name());
+            document.append("checkInTime", checkInTime);
+            document.append("startTime", startTime);
+            document.append("endTime", endTime);
+            document.append("finishedAt", 0L);
 
             // Adds the participants to the tournament document.
             final Document participantsDocument = new Document();
@@ -215,10 +295,20 @@ public class Tournament {
             }
             document.append("teams", teamsDocument);
 
+            // Adds the stages to the tournament document.
+            final Document stagesDocument = new Document();
+            for(final Stage stage : this.stages) {
+                stagesDocument.append(stage.getID(), stage.toDocument());
+            }
+            document.append("stages", stagesDocument);
+
             // Adds the tournament to MongoDB
             final Tournament tournament = new Tournament(document);
             tournament.updateMongoDB();
 
+            // Schedules the tournament's status changes.
+            TourneasyServer.getTournamentScheduler().schedule(tournament);
+
             // Returns the built tournament.
             return tournament;
         }
@@ -0,0 +1,355 @@
+/*
+ * This file is part of tourneasy-server, licensed under the MIT License.
+ *
+ *  Copyright (c) JadedMC
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package net.jadedmc.tourneasyserver.tournament;
+
+import net.jadedmc.tourneasyserver.database.MongoDB;
+import net.jadedmc.tourneasyserver.tournament.participant.Participant;
+import net.jadedmc.tourneasyserver.tournament.stage.Stage;
+import net.jadedmc.tourneasyserver.tournament.stage.StageType;
+import net.jadedmc.tourneasyserver.tournament.team.Team;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.json.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Reads tournament JSON straight from a request body into a Tournament.Builder.
+ * Participants, teams and stages are decoded one at a time as they are read, so the body is
+ * never held in memory as a whole. Requests over the configured limits are rejected as soon
+ * as the limit is passed, without reading the rest of the body.
+ * Every decoded sub-document is checked field by field before it is handed to a model constructor,
+ * so bad input is reported back to the client instead of failing inside the constructor.
+ */
+public class TournamentReader {
+    private final DocumentCodec codec = new DocumentCodec();
+    private final long maxBytes;
+    private final int maxParticipants;
+    private final int maxTeams;
+    private final int maxStages;
+    private final int maxMatches;
+
+    /**
+     * Creates the reader.
+     * @param maxBytes Maximum size of a request body, in bytes.
+     * @param maxParticipants Maximum number of participants in a tournament.
+     * @param maxTeams Maximum number of teams in a tournament.
+     * @param maxStages Maximum number of stages in a tournament.
+     * @param maxMatches Maximum number of matches in a stage.
+     */
+    public TournamentReader(final long maxBytes, final int maxParticipants, final int maxTeams, final int maxStages, final int maxMatches) {
+        this.maxBytes = maxBytes;
+        this.maxParticipants = maxParticipants;
+        this.maxTeams = maxTeams;
+        this.maxStages = maxStages;
+        this.maxMatches = maxMatches;
+    }
+
+    /**
+     * Gets the maximum size of a request body.
+     * @return Maximum size, in bytes.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Reads a tournament from a JSON input stream.
+     * @param inputStream Stream containing the tournament JSON.
+     * @return Builder for the tournament.
+     * @throws IllegalArgumentException If the JSON is not a valid tournament, or goes over a limit.
+     * @throws org.bson.BSONException If the JSON has the wrong types.
+     * @throws org.bson.json.JsonParseException If the JSON is malformed.
+     */
+    public Tournament.Builder read(final InputStream inputStream) {
+        final JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new LimitedInputStream(inputStream, maxBytes), StandardCharsets.UTF_8)));
+        final Tournament.Builder builder = new Tournament.Builder();
+
+        // JsonReader allows repeated keys, which would otherwise give every repeat of "participants" its own limit.
+        final Set<String> readFields = new HashSet<>();
+
+        reader.readStartDocument();
+        while(reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            final String field = reader.readName();
+
+            if(!readFields.add(field)) {
+                throw new IllegalArgumentException("\"" + field + "\" appears more than once");
+            }
+
+            switch (field) {
+                case "id" -> builder.setID(reader.readString());
+                case "name" -> builder.setName(reader.readString());
+                case "description" -> builder.setDescription(reader.readString());
+                case "game" -> builder.setGame(reader.readString());
+                case "createdAt" -> builder.setCreatedAt(readLong(reader));
+                case "teamSize" -> builder.setTeamSize((int) readLong(reader));
+                case "checkInTime" -> builder.setCheckInTime(readTime(reader));
+                case "startTime" -> builder.setStartTime(readTime(reader));
+                case "endTime" -> builder.setEndTime(readTime(reader));
+                case "participants" -> readDocuments(reader, "participants", maxParticipants, document -> {
+                    validateParticipant(document);
+                    builder.addParticipant(new Participant(document));
+                });
+                case "teams" -> readDocuments(reader, "teams", maxTeams, document -> {
+                    validateTeam(document);
+                    builder.addTeam(new Team(document));
+                });
+                case "stages" -> readDocuments(reader, "stages", maxStages, document -> {
+                    validateStage(document);
+                    builder.addStage(new Stage(document));
+                });
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        return builder;
+    }
+
+    /**
+     * Reads an object of sub-documents, such as the participants object, one sub-document at a time.
+     */
+    private void readDocuments(final JsonReader reader, final String type, final int limit, final Consumer<Document> consumer) {
+        int count = 0;
+
+        reader.readStartDocument();
+        while(reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            reader.readName();
+
+            if(++count > limit) {
+                throw new IllegalArgumentException("too many " + type + ", the limit is " + limit);
+            }
+
+            consumer.accept(codec.decode(reader, DecoderContext.builder().build()));
+        }
+        reader.readEndDocument();
+    }
+
+    /**
+     * Reads a scheduled time, where 0 means "not scheduled".
+     */
+    private static long readTime(final JsonReader reader) {
+        final long time = readLong(reader);
+
+        if(time < 0) {
+            throw new IllegalArgumentException("times cannot be negative");
+        }
+
+        return time;
+    }
+
+    private static long readLong(final JsonReader reader) {
+        return switch (reader.getCurrentBsonType()) {
+            case INT32 -> reader.readInt32();
+            case INT64 -> reader.readInt64();
+            case DOUBLE -> (long) reader.readDouble();
+            default -> throw new IllegalArgumentException("expected a number but found " + reader.getCurrentBsonType());
+        };
+    }
+
+    private void validateParticipant(final Document document) {
+        requireID(document, "participant");
+        optionalType(document, "name", String.class, "participant");
+        optionalType(document, "checkedIn", Boolean.class, "participant");
+        optionalType(document, "forfeited", Boolean.class, "participant");
+    }
+
+    private void validateTeam(final Document document) {
+        requireID(document, "team");
+        optionalType(document, "name", String.class, "team");
+
+        if(!(document.get("participants") instanceof List<?> participants)) {
+            throw new IllegalArgumentException("team " + document.getString("id") + " has no participants list");
+        }
+
+        for(final Object participant : participants) {
+            if(!(participant instanceof String)) {
+                throw new IllegalArgumentException("team " + document.getString("id") + " has a participant that is not an id");
+            }
+        }
+    }
+
+    private void validateStage(final Document document) {
+        // Stages without an id get a generated one.
+        if(document.containsKey("id")) {
+            requireID(document, "stage");
+        }
+
+        // Stages are always created waiting, at their first version. The server keeps track of both from then on.
+        document.remove("status");
+        document.remove("version");
+
+        optionalType(document, "name", String.class, "stage");
+        optionalEnum(document, "type", StageType.class, "stage");
+        optionalType(document, "startTime", Number.class, "stage");
+        if(document.get("startTime") != null && ((Number) document.get("startTime")).longValue() < 0) {
+            throw new IllegalArgumentException("stage \"startTime\" cannot be negative");
+        }
+        optionalType(document, "matches", Document.class, "stage");
+
+        final Document matchesDocument = document.get("matches", new Document());
+        if(matchesDocument.size() > maxMatches) {
+            throw new IllegalArgumentException("too many matches in a stage, the limit is " + maxMatches);
+        }
+
+        for(final Object match : matchesDocument.values()) {
+            if(!(match instanceof Document matchDocument)) {
+                throw new IllegalArgumentException("stage has a match that is not an object");
+            }
+
+            validateMatch(matchDocument);
+        }
+    }
+
+    private void validateMatch(final Document document) {
+        requireID(document, "match");
+        optionalType(document, "round", Number.class, "match");
+        optionalType(document, "position", Number.class, "match");
+
+        // Matches are only decided by reported results.
+        document.remove("status");
+        document.remove("winner");
+
+        optionalType(document, "nextMatch", String.class, "match");
+
+        if(document.get("nextMatch") != null && !MongoDB.isValidFieldName(document.getString("nextMatch"))) {
+            throw new IllegalArgumentException("match has an invalid \"nextMatch\"");
+        }
+
+        // Matches always have exactly two sides.
+        if(document.containsKey("nextSlot") && !(document.get("nextSlot") instanceof Number nextSlot && (nextSlot.intValue() == 0 || nextSlot.intValue() == 1))) {
+            throw new IllegalArgumentException("match \"nextSlot\" must be 0 or 1");
+        }
+
+        optionalPair(document, "entrants", String.class);
+        optionalPair(document, "scores", Number.class);
+    }
+
+    private static void requireID(final Document document, final String type) {
+        if(!(document.get("id") instanceof String id) || !MongoDB.isValidFieldName(id)) {
+            throw new IllegalArgumentException(type + " is missing a valid \"id\"");
+        }
+    }
+
+    private static void optionalType(final Document document, final String key, final Class<?> clazz, final String type) {
+        if(document.get(key) != null && !clazz.isInstance(document.get(key))) {
+            throw new IllegalArgumentException(type + " has an invalid \"" + key + "\"");
+        }
+    }
+
+    private static <T extends Enum<T>> void optionalEnum(final Document document, final String key, final Class<T> enumClass, final String type) {
+        optionalType(document, key, String.class, type);
+
+        if(document.get(key) != null) {
+            try {
+                Enum.valueOf(enumClass, document.getString(key));
+            }
+            catch (IllegalArgumentException exception) {
+                throw new IllegalArgumentException(type + " has an unknown " + key + " \"" + document.getString(key) + "\"");
+            }
+        }
+    }
+
+    /**
+     * Checks an optional list of up to two values, one per side of a match.
+     * Entrants can be null for a side that is not decided yet, but scores cannot.
+     */
+    private static void optionalPair(final Document document, final String key, final Class<?> clazz) {
+        if(document.get(key) == null) {
+            return;
+        }
+
+        if(!(document.get(key) instanceof List<?> list) || list.size() > 2) {
+            throw new IllegalArgumentException("match \"" + key + "\" must be a list of at most two values");
+        }
+
+        for(final Object value : list) {
+            if(value == null ? clazz == Number.class : !clazz.isInstance(value)) {
+                throw new IllegalArgumentException("match has an invalid value in \"" + key + "\"");
+            }
+        }
+    }
+
+    /**
+     * Input stream that fails once more than a set number of bytes have been read from it.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count = 0;
+
+        private LimitedInputStream(final InputStream inputStream, final long limit) {
+            super(inputStream);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int value = super.read();
+
+            if(value != -1) {
+                count(1);
+            }
+
+            return value;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+            final int read = super.read(bytes, offset, length);
+
+            if(read > 0) {
+                count(read);
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(final long length) throws IOException {
+            final long skipped = super.skip(length);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(final long bytes) {
+            count += bytes;
+
+            if(count > limit) {
+                throw new IllegalArgumentException("request body is larger than " + limit + " bytes");
+            }
+        }
+    }
+}
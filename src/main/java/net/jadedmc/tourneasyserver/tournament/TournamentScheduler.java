@@ -0,0 +1,353 @@
+/*
+ * This file is part of tourneasy-server, licensed under the MIT License.
+ *
+ *  Copyright (c) JadedMC
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package net.jadedmc.tourneasyserver.tournament;
+
+import com.mongodb.client.model.Projections;
+import net.jadedmc.tourneasyserver.TourneasyServer;
+import net.jadedmc.tourneasyserver.scheduler.TimingWheel;
+import net.jadedmc.tourneasyserver.tournament.stage.StageStatus;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Moves tournaments and their stages through their statuses at their scheduled times.
+ * Each unfinished tournament has a single timer in a timing wheel, set for its next transition.
+ * When the timer fires, every transition that is due is written to MongoDB in one atomic update,
+ * and the timer is set again for the transition after that.
+ * <ul>
+ *     <li>SCHEDULED to WAITING at the check-in time, which opens check-in.</li>
+ *     <li>WAITING to RUNNING at the start time. If the tournament has check-in, participants who did not check in forfeit.</li>
+ *     <li>Stages from WAITING to STARTED at their start time, once the tournament is running.</li>
+ *     <li>RUNNING to FINISHED at the end time, which also finishes any unfinished stages.</li>
+ * </ul>
+ */
+public class TournamentScheduler {
+    private final Map<String, TimingWheel.Timeout> timeouts = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final TimingWheel timingWheel;
+    private final Logger logger;
+
+    /**
+     * Creates the scheduler.
+     */
+    public TournamentScheduler() {
+        this.logger = LoggerFactory.getLogger("[Scheduler]");
+        this.executor = Executors.newFixedThreadPool(4, runnable -> {
+            final Thread thread = new Thread(runnable, "TournamentScheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timingWheel = new TimingWheel(1000, executor);
+    }
+
+    /**
+     * Rebuilds the timers of every unfinished tournament from MongoDB.
+     * Transitions that were missed while the server was offline are applied right away.
+     */
+    public void load() {
+        // Documents from before tournaments had a status count as scheduled.
+        final Document filter = new Document("status", new Document("$in", Arrays.asList(TournamentStatus.SCHEDULED.name(), TournamentStatus.WAITING.name(), TournamentStatus.RUNNING.name(), null)));
+
+        int scheduled = 0;
+        for(final Document document : TourneasyServer.getMongoDB().getDatabase().getCollection("tournaments").find(filter).projection(Projections.include("id", "status", "checkInTime", "startTime", "endTime", "stages", "forfeitsPending"))) {
+            if(schedule(document)) {
+                scheduled++;
+            }
+        }
+
+        logger.info("Scheduled {} tournaments.", scheduled);
+    }
+
+    /**
+     * Schedules the next transition of a tournament, replacing any existing timer for it.
+     * @param tournament Tournament to schedule.
+     */
+    public void schedule(final Tournament tournament) {
+        schedule(tournament.toDocument());
+    }
+
+    /**
+     * Stops the scheduler. Pending timers are rebuilt on the next startup.
+     */
+    public void stop() {
+        timingWheel.stop();
+        executor.shutdown();
+    }
+
+    private boolean schedule(final Document document) {
+        final String tournamentID = document.getString("id");
+        final long nextTransition = getNextTransition(document);
+
+        // Nothing left to do for this tournament.
+        if(nextTransition == 0) {
+            final TimingWheel.Timeout previous = timeouts.remove(tournamentID);
+            if(previous != null) {
+                previous.cancel();
+            }
+
+            return false;
+        }
+
+        final TimingWheel.Timeout previous = timeouts.put(tournamentID, timingWheel.schedule(nextTransition, () -> process(tournamentID)));
+        if(previous != null) {
+            previous.cancel();
+        }
+
+        return true;
+    }
+
+    private void process(final String tournamentID) {
+        try {
+            Document document = TourneasyServer.getMongoDB().getTournamentDocument(tournamentID);
+
+            // Finishes forfeits left over from a start that was interrupted.
+            if(document != null && document.get("forfeitsPending", false)) {
+                document = applyForfeits(document);
+            }
+
+            // The tournament was deleted.
+            if(document == null) {
+                timeouts.remove(tournamentID);
+                return;
+            }
+
+            final long now = System.currentTimeMillis();
+            final TournamentStatus previousStatus = getStatus(document);
+            final long checkInTime = getTime(document, "checkInTime");
+            final long startTime = getTime(document, "startTime");
+            final long endTime = getTime(document, "endTime");
+
+            // Only applies the update if nothing else changed the tournament in the meantime.
+            final Document filter = new Document("id", tournamentID).append("status", document.getString("status"));
+            final Document changes = new Document();
+            TournamentStatus status = previousStatus;
+
+            // Opens check-in.
+            if(status == TournamentStatus.SCHEDULED && checkInTime > 0 && checkInTime <= now) {
+                status = TournamentStatus.WAITING;
+
+                // Check-in opened late, such as after a restart that spanned the check-in window.
+                // Moves the start back so participants still get the full window to check in, instead of all forfeiting.
+                // The end and stage start times move by the same amount, so the schedule keeps its shape.
+                if(startTime > 0 && startTime <= now) {
+                    final long newStartTime = now + Math.max(0, startTime - checkInTime);
+                    final long delay = newStartTime - startTime;
+                    changes.append("startTime", newStartTime);
+
+                    if(endTime > 0) {
+                        changes.append("endTime", endTime + delay);
+                    }
+
+                    final Document stagesDocument = document.get("stages", new Document());
+                    for(final String stageID : stagesDocument.keySet()) {
+                        final long stageStartTime = getTime(stagesDocument.get(stageID, Document.class), "startTime");
+
+                        if(stageStartTime > 0) {
+                            changes.append("stages." + stageID + ".startTime", stageStartTime + delay);
+                        }
+                    }
+
+                    logger.info("Check-in for tournament {} opened late, moved its schedule back by {} ms.", tournamentID, delay);
+                }
+            }
+
+            // Starts the tournament. If it has check-in, only starts once check-in has really been open.
+            final boolean canStart = (status == TournamentStatus.SCHEDULED && checkInTime <= 0) || previousStatus == TournamentStatus.WAITING;
+            if(canStart && startTime > 0 && startTime <= now) {
+                status = TournamentStatus.RUNNING;
+
+                // Participants who did not check in forfeit, but only once the tournament is RUNNING,
+                // which closes check-in. Otherwise a check-in landing during this update could still be forfeited.
+                if(checkInTime > 0) {
+                    changes.append("forfeitsPending", true);
+                }
+            }
+
+            final Document stagesDocument = document.get("stages", new Document());
+
+            // Starts any stages that are due.
+            if(status == TournamentStatus.RUNNING) {
+                for(final String stageID : stagesDocument.keySet()) {
+                    final Document stageDocument = stagesDocument.get(stageID, Document.class);
+                    final long stageStartTime = getTime(stageDocument, "startTime");
+
+                    if(getStageStatus(stageDocument) == StageStatus.WAITING && stageStartTime > 0 && stageStartTime <= now) {
+                        filter.append("stages." + stageID + ".status", stageDocument.getString("status"));
+                        changes.append("stages." + stageID + ".status", StageStatus.STARTED.name());
+                    }
+                }
+            }
+
+            // Finishes the tournament, along with any stages that are still going.
+            // A tournament that only just started finishes on the next pass, after its forfeits are applied,
+            // so leftover forfeits are only ever on RUNNING tournaments, which are rebuilt on startup.
+            if(previousStatus == TournamentStatus.RUNNING && endTime > 0 && endTime <= now) {
+                status = TournamentStatus.FINISHED;
+                changes.append("finishedAt", now);
+
+                for(final String stageID : stagesDocument.keySet()) {
+                    final Document stageDocument = stagesDocument.get(stageID, Document.class);
+
+                    if(getStageStatus(stageDocument) != StageStatus.FINISHED) {
+                        changes.append("stages." + stageID + ".status", StageStatus.FINISHED.name());
+                    }
+                }
+            }
+
+            // Timer fired early, or the tournament was changed since it was scheduled.
+            if(changes.isEmpty() && status == previousStatus) {
+                schedule(document);
+                return;
+            }
+
+            changes.append("status", status.name());
+            Document updatedDocument = TourneasyServer.getMongoDB().findAndUpdateTournamentDocument(filter, new Document("$set", changes));
+
+            // Something else changed the tournament first, so starts over from the latest version.
+            if(updatedDocument == null) {
+                updatedDocument = TourneasyServer.getMongoDB().getTournamentDocument(tournamentID);
+
+                if(updatedDocument == null) {
+                    timeouts.remove(tournamentID);
+                    return;
+                }
+            }
+            else if(status != previousStatus) {
+                logger.info("Tournament {} is now {}.", tournamentID, status);
+            }
+
+            // Check-in is closed now, so the forfeits can be worked out from the updated document.
+            if(updatedDocument.get("forfeitsPending", false)) {
+                updatedDocument = applyForfeits(updatedDocument);
+
+                if(updatedDocument == null) {
+                    timeouts.remove(tournamentID);
+                    return;
+                }
+            }
+
+            schedule(updatedDocument);
+        }
+        catch (Exception exception) {
+            logger.error("Could not update tournament " + tournamentID + ".");
+            logger.error(exception.getMessage());
+        }
+    }
+
+    /**
+     * Forfeits every participant who did not check in. Only called once the tournament has left WAITING,
+     * so no check-in can be accepted after the participants are read.
+     * @param document Tournament document, read after the tournament started.
+     * @return The updated tournament document, or null if the tournament was deleted.
+     */
+    private Document applyForfeits(final Document document) {
+        final String tournamentID = document.getString("id");
+        final Document changes = new Document("forfeitsPending", false);
+
+        final Document participantsDocument = document.get("participants", new Document());
+        for(final String participantID : participantsDocument.keySet()) {
+            if(!participantsDocument.get(participantID, Document.class).get("checkedIn", false)) {
+                changes.append("participants." + participantID + ".forfeited", true);
+            }
+        }
+
+        final Document filter = new Document("id", tournamentID).append("forfeitsPending", true);
+        final Document updatedDocument = TourneasyServer.getMongoDB().findAndUpdateTournamentDocument(filter, new Document("$set", changes));
+
+        // Another server applied the forfeits first.
+        if(updatedDocument == null) {
+            return TourneasyServer.getMongoDB().getTournamentDocument(tournamentID);
+        }
+
+        logger.info("Forfeited {} participants of tournament {} who did not check in.", changes.size() - 1, tournamentID);
+        return updatedDocument;
+    }
+
+    /**
+     * Gets the time of the next transition of a tournament.
+     * @param document Tournament document.
+     * @return Time of the next transition in epoch milliseconds, or 0 if there is none.
+     */
+    private long getNextTransition(final Document document) {
+        final long checkInTime = getTime(document, "checkInTime");
+        final long startTime = getTime(document, "startTime");
+        final long endTime = getTime(document, "endTime");
+
+        // Forfeits from an interrupted start are due right away.
+        if(document.get("forfeitsPending", false)) {
+            return System.currentTimeMillis();
+        }
+
+        switch (getStatus(document)) {
+            case SCHEDULED -> {
+                return checkInTime > 0 ? checkInTime : startTime;
+            }
+            case WAITING -> {
+                return startTime;
+            }
+            case RUNNING -> {
+                long nextTransition = endTime;
+
+                final Document stagesDocument = document.get("stages", new Document());
+                for(final String stageID : stagesDocument.keySet()) {
+                    final Document stageDocument = stagesDocument.get(stageID, Document.class);
+                    final long stageStartTime = getTime(stageDocument, "startTime");
+
+                    if(getStageStatus(stageDocument) == StageStatus.WAITING && stageStartTime > 0 && (nextTransition == 0 || stageStartTime < nextTransition)) {
+                        nextTransition = stageStartTime;
+                    }
+                }
+
+                return nextTransition;
+            }
+            default -> {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gets a scheduled time from a document. Anything not positive means "not scheduled" and becomes 0,
+     * so negative times never turn into deadlines that are always in the past.
+     */
+    private static long getTime(final Document document, final String key) {
+        return Math.max(0, ((Number) document.get(key, 0L)).longValue());
+    }
+
+    private static TournamentStatus getStatus(final Document document) {
+        return TournamentStatus.valueOf(document.get("status", TournamentStatus.SCHEDULED.name()));
+    }
+
+    private static StageStatus getStageStatus(final Document document) {
+        return StageStatus.valueOf(document.get("status", StageStatus.WAITING.name()));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of tourneasy-server, licensed under the MIT License.
+ *
+ *  Copyright (c) JadedMC
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package net.jadedmc.tourneasyserver.tournament.bracket;
+
+import net.jadedmc.tourneasyserver.tournament.Tournament;
+import net.jadedmc.tourneasyserver.tournament.stage.Stage;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the latest bracket snapshot of recently viewed stages, one per stage.
+ * Callers look up the version they read from MongoDB, and a snapshot is only returned if it was rendered
+ * from that version of the same tournament document, so a snapshot is never served after the stage
+ * changed, even when the change was made by another server or the tournament was re-created.
+ */
+public class BracketCache {
+    private final Map<String, BracketSnapshot> snapshots;
+    private final int size;
+
+    /**
+     * Creates the cache.
+     * @param size How many stages to keep a snapshot of.
+     */
+    public BracketCache(final int size) {
+        this.size = size;
+
+        // Access ordered, so the least recently viewed stage is dropped first.
+        this.snapshots = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, BracketSnapshot> eldest) {
+                return size() > size;
+            }
+        });
+    }
+
+    /**
+     * Gets the cached snapshot of a specific version of a stage.
+     * @param tournamentID ID of the tournament.
+     * @param documentID Hex string of the tournament document's _id.
+     * @param stageID ID of the stage.
+     * @param version Version of the stage.
+     * @return The snapshot, or null if that version is not cached.
+     */
+    public BracketSnapshot get(final String tournamentID, final String documentID, final String stageID, final long version) {
+        final BracketSnapshot snapshot = snapshots.get(key(tournamentID, stageID));
+
+        if(snapshot == null || !snapshot.getDocumentID().equals(documentID) || snapshot.getVersion() != version) {
+            return null;
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Gets the snapshot of a stage, rendering it if it is not cached.
+     * @param tournament Tournament the stage is in.
+     * @param stage Stage to get the snapshot of.
+     * @return The stage's snapshot.
+     */
+    public BracketSnapshot get(final Tournament tournament, final Stage stage) {
+        final BracketSnapshot snapshot = get(tournament.getID(), tournament.getDocumentID(), stage.getID(), stage.getVersion());
+
+        if(snapshot != null) {
+            return snapshot;
+        }
+
+        return put(BracketSnapshot.create(tournament, stage));
+    }
+
+    /**
+     * Gets how many snapshots the cache can hold.
+     * @return Size of the cache.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Creates the snapshot of a stage after some of its matches changed, based on the snapshot of the version before.
+     * @param tournament Updated tournament.
+     * @param stage Updated stage.
+     * @param changedMatches IDs of the matches that changed.
+     * @return The new snapshot.
+     */
+    public BracketSnapshot update(final Tournament tournament, final Stage stage, final Collection<String> changedMatches) {
+        final BracketSnapshot previous = get(tournament.getID(), tournament.getDocumentID(), stage.getID(), stage.getVersion() - 1);
+        return put(BracketSnapshot.update(previous, tournament, stage, changedMatches));
+    }
+
+    private BracketSnapshot put(final BracketSnapshot snapshot) {
+        // Keeps the cached snapshot if a request that read the stage earlier finishes rendering after a newer one.
+        snapshots.merge(key(snapshot.getTournamentID(), snapshot.getStageID()), snapshot, (cached, rendered) -> {
+            if(cached.getDocumentID().equals(rendered.getDocumentID()) && cached.getVersion() > rendered.getVersion()) {
+                return cached;
+            }
+
+            return rendered;
+        });
+
+        return snapshot;
+    }
+
+    private static String key(final String tournamentID, final String stageID) {
+        return tournamentID + "/" + stageID;
+    }
+}
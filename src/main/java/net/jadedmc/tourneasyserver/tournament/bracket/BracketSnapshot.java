@@ -0,0 +1,283 @@
+/*
+ * This file is part of tourneasy-server, licensed under the MIT License.
+ *
+ *  Copyright (c) JadedMC
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package net.jadedmc.tourneasyserver.tournament.bracket;
+
+import net.jadedmc.tourneasyserver.tournament.Tournament;
+import net.jadedmc.tourneasyserver.tournament.match.Match;
+import net.jadedmc.tourneasyserver.tournament.participant.Participant;
+import net.jadedmc.tourneasyserver.tournament.stage.Stage;
+import net.jadedmc.tourneasyserver.tournament.team.Team;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A render-ready copy of a stage's bracket at a specific version.
+ * Matches are grouped into rounds and sorted, and entrant IDs are replaced by their names,
+ * so clients can draw the bracket without any processing of their own.
+ * Snapshots never change once created, so their JSON and SVG are only generated once.
+ */
+public class BracketSnapshot {
+    private static final int MATCH_WIDTH = 200;
+    private static final int MATCH_HEIGHT = 50;
+    private static final int ROUND_GAP = 40;
+    private static final int MATCH_GAP = 20;
+
+    private final String tournamentID;
+
+    // _id of the tournament document, which tells apart tournaments that were re-created with the same id.
+    private final String documentID;
+    private final String stageID;
+    private final long version;
+    private final Map<String, String> names;
+    private final List<List<Document>> rounds;
+
+    // Where each match is in the rounds list, so single matches can be replaced.
+    private final Map<String, int[]> positions;
+    private final String json;
+    private volatile String svg;
+
+    private BracketSnapshot(final Tournament tournament, final Stage stage, final Map<String, String> names, final List<List<Document>> rounds, final Map<String, int[]> positions) {
+        this.tournamentID = tournament.getID();
+        this.documentID = tournament.getDocumentID();
+        this.stageID = stage.getID();
+        this.version = stage.getVersion();
+        this.names = names;
+        this.rounds = rounds;
+        this.positions = positions;
+
+        this.json = new Document()
+                .append("tournament", tournament.getID())
+                .append("stage", stage.getID())
+                .append("name", stage.getName())
+                .append("type", stage.getType().name())
+                .append("version", version)
+                .append("rounds", rounds)
+                .toJson();
+    }
+
+    /**
+     * Renders the full bracket of a stage.
+     * @param tournament Tournament the stage is in.
+     * @param stage Stage to render.
+     * @return The stage's bracket.
+     */
+    public static BracketSnapshot create(final Tournament tournament, final Stage stage) {
+        // Maps participant and team IDs to their names.
+        final Map<String, String> names = new HashMap<>();
+        for(final Participant participant : tournament.getParticipants()) {
+            names.put(participant.getID(), participant.getName());
+        }
+        for(final Team team : tournament.getTeams()) {
+            names.put(team.getID(), team.getName());
+        }
+
+        // Groups matches into rounds, in order.
+        final Map<Integer, List<Match>> matchesByRound = new TreeMap<>();
+        for(final Match match : stage.getMatches()) {
+            matchesByRound.computeIfAbsent(match.getRound(), round -> new ArrayList<>()).add(match);
+        }
+
+        final List<List<Document>> rounds = new ArrayList<>();
+        final Map<String, int[]> positions = new HashMap<>();
+        for(final List<Match> matches : matchesByRound.values()) {
+            matches.sort(Comparator.comparingInt(Match::getPosition));
+
+            final List<Document> round = new ArrayList<>();
+            for(final Match match : matches) {
+                positions.put(match.getID(), new int[] {rounds.size(), round.size()});
+                round.add(render(match, names));
+            }
+
+            rounds.add(round);
+        }
+
+        return new BracketSnapshot(tournament, stage, names, rounds, positions);
+    }
+
+    /**
+     * Creates the next version of a bracket by only re-rendering the matches that changed.
+     * Falls back to rendering the full bracket if the previous snapshot is not the version right before.
+     * @param previous Previous snapshot of the bracket, if there is one.
+     * @param tournament Tournament the stage is in.
+     * @param stage Updated stage.
+     * @param changedMatches IDs of the matches that changed.
+     * @return The stage's bracket.
+     */
+    public static BracketSnapshot update(final BracketSnapshot previous, final Tournament tournament, final Stage stage, final Collection<String> changedMatches) {
+        if(previous == null || !previous.documentID.equals(tournament.getDocumentID()) || previous.version + 1 != stage.getVersion()) {
+            return create(tournament, stage);
+        }
+
+        final List<List<Document>> rounds = new ArrayList<>();
+        for(final List<Document> round : previous.rounds) {
+            rounds.add(new ArrayList<>(round));
+        }
+
+        for(final String matchID : changedMatches) {
+            final Match match = stage.getMatch(matchID);
+            final int[] position = previous.positions.get(matchID);
+
+            // The bracket's layout changed, so it has to be rendered from scratch.
+            if(match == null || position == null) {
+                return create(tournament, stage);
+            }
+
+            rounds.get(position[0]).set(position[1], render(match, previous.names));
+        }
+
+        return new BracketSnapshot(tournament, stage, previous.names, rounds, previous.positions);
+    }
+
+    /**
+     * Gets the _id of the tournament document the snapshot was rendered from.
+     * @return Hex string of the document's _id.
+     */
+    public String getDocumentID() {
+        return documentID;
+    }
+
+    public String getTournamentID() {
+        return tournamentID;
+    }
+
+    public String getStageID() {
+        return stageID;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String toJson() {
+        return json;
+    }
+
+    /**
+     * Gets the bracket drawn as an SVG image. Rounds are columns, and every match is centered
+     * on the space it takes up in the round, with lines to the match its winner goes to.
+     * @return SVG image of the bracket.
+     */
+    public String toSVG() {
+        if(svg != null) {
+            return svg;
+        }
+
+        int mostMatches = 1;
+        for(final List<Document> round : rounds) {
+            mostMatches = Math.max(mostMatches, round.size());
+        }
+
+        final int width = Math.max(1, rounds.size()) * (MATCH_WIDTH + ROUND_GAP);
+        final int height = mostMatches * (MATCH_HEIGHT + MATCH_GAP);
+
+        // Works out where every match is drawn.
+        final Map<String, int[]> coordinates = new HashMap<>();
+        for(int roundIndex = 0; roundIndex < rounds.size(); roundIndex++) {
+            final List<Document> round = rounds.get(roundIndex);
+            final double spacing = (double) height / round.size();
+
+            for(int matchIndex = 0; matchIndex < round.size(); matchIndex++) {
+                final int x = roundIndex * (MATCH_WIDTH + ROUND_GAP) + ROUND_GAP / 2;
+                final int y = (int) (spacing * (matchIndex + 0.5)) - MATCH_HEIGHT / 2;
+                coordinates.put(round.get(matchIndex).getString("id"), new int[] {x, y});
+            }
+        }
+
+        final StringBuilder builder = new StringBuilder();
+        builder.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(width).append("\" height=\"").append(height)
+                .append("\" font-family=\"sans-serif\" font-size=\"12\">");
+
+        for(final List<Document> round : rounds) {
+            for(final Document match : round) {
+                final int[] coordinate = coordinates.get(match.getString("id"));
+                final int x = coordinate[0];
+                final int y = coordinate[1];
+
+                // Connects the match to the one its winner goes to.
+                final int[] next = coordinates.get(match.getString("next"));
+                if(next != null) {
+                    final int middle = x + MATCH_WIDTH + ROUND_GAP / 2;
+                    builder.append("<polyline fill=\"none\" stroke=\"#999\" points=\"")
+                            .append(x + MATCH_WIDTH).append(',').append(y + MATCH_HEIGHT / 2).append(' ')
+                            .append(middle).append(',').append(y + MATCH_HEIGHT / 2).append(' ')
+                            .append(middle).append(',').append(next[1] + MATCH_HEIGHT / 2).append(' ')
+                            .append(next[0]).append(',').append(next[1] + MATCH_HEIGHT / 2).append("\"/>");
+                }
+
+                builder.append("<rect x=\"").append(x).append("\" y=\"").append(y).append("\" width=\"").append(MATCH_WIDTH)
+                        .append("\" height=\"").append(MATCH_HEIGHT).append("\" fill=\"#fff\" stroke=\"#333\"/>");
+
+                final List<Document> slots = match.getList("slots", Document.class);
+                for(int slot = 0; slot < slots.size(); slot++) {
+                    final Document slotDocument = slots.get(slot);
+                    final int textY = y + (MATCH_HEIGHT / 2) * slot + 17;
+                    final String weight = slotDocument.getBoolean("winner") ? "bold" : "normal";
+
+                    builder.append("<text x=\"").append(x + 6).append("\" y=\"").append(textY).append("\" font-weight=\"").append(weight).append("\">")
+                            .append(escape(slotDocument.getString("name"))).append("</text>");
+                    builder.append("<text x=\"").append(x + MATCH_WIDTH - 6).append("\" y=\"").append(textY).append("\" text-anchor=\"end\" font-weight=\"").append(weight).append("\">")
+                            .append(slotDocument.getInteger("score")).append("</text>");
+                }
+            }
+        }
+
+        builder.append("</svg>");
+        svg = builder.toString();
+        return svg;
+    }
+
+    /**
+     * Renders a single match.
+     */
+    private static Document render(final Match match, final Map<String, String> names) {
+        final List<Document> slots = new ArrayList<>();
+        for(int slot = 0; slot < match.getEntrants().size(); slot++) {
+            final String entrant = match.getEntrants().get(slot);
+            final String name = entrant == null ? "TBD" : names.get(entrant);
+
+            slots.add(new Document()
+                    .append("name", name == null ? entrant : name)
+                    .append("score", match.getScores().get(slot))
+                    .append("winner", entrant != null && entrant.equals(match.getWinner())));
+        }
+
+        return new Document()
+                .append("id", match.getID())
+                .append("status", match.getStatus().name())
+                .append("next", match.getNextMatch())
+                .append("slots", slots);
+    }
+
+    private static String escape(final String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -24,5 +24,98 @@
  */
 package net.jadedmc.tourneasyserver.tournament.match;
 
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class Match {
+    private final String id;
+    private final int round;
+    private final int position;
+    private final MatchStatus status;
+    private final List<String> entrants = new ArrayList<>();
+    private final List<Integer> scores = new ArrayList<>();
+    private final String winner;
+
+    // Where the winner goes next, if anywhere.
+    private final String nextMatch;
+    private final int nextSlot;
+
+    public Match(final Document document) {
+        this.id = document.getString("id");
+        this.round = ((Number) document.get("round", 1)).intValue();
+        this.position = ((Number) document.get("position", 0)).intValue();
+        this.status = MatchStatus.valueOf(document.get("status", MatchStatus.WAITING.name()));
+        this.entrants.addAll(document.get("entrants", Collections.emptyList()));
+        for(final Object score : document.get("scores", Collections.emptyList())) {
+            this.scores.add(((Number) score).intValue());
+        }
+
+        // Every match has two sides, even when they are not known yet.
+        while(this.entrants.size() < 2) {
+            this.entrants.add(null);
+        }
+
+        while(this.scores.size() < 2) {
+            this.scores.add(0);
+        }
+        this.winner = document.getString("winner");
+        this.nextMatch = document.getString("nextMatch");
+        this.nextSlot = ((Number) document.get("nextSlot", 0)).intValue();
+    }
+
+    public String getID() {
+        return id;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public MatchStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the IDs of the participants or teams playing in the match.
+     * @return Entrant IDs, with null for a slot that has not been decided yet.
+     */
+    public List<String> getEntrants() {
+        return entrants;
+    }
+
+    public List<Integer> getScores() {
+        return scores;
+    }
+
+    public String getWinner() {
+        return winner;
+    }
+
+    public String getNextMatch() {
+        return nextMatch;
+    }
+
+    public int getNextSlot() {
+        return nextSlot;
+    }
+
+    public Document toDocument() {
+        return new Document()
+                .append("id", this.id)
+                .append("round", this.round)
+                .append("position", this.position)
+                .append("status", this.status.name())
+                .append("entrants", this.entrants)
+                .append("scores", this.scores)
+                .append("winner", this.winner)
+                .append("nextMatch", this.nextMatch)
+                .append("nextSlot", this.nextSlot);
+    }
 }
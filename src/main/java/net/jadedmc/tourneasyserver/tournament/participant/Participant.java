@@ -29,19 +29,37 @@ import org.bson.Document;
 public class Participant {
     private final String id;
     private final String username;
+    private final boolean checkedIn;
+    private final boolean forfeited;
 
     public Participant(final Document document) {
         this.id = document.getString("id");
         this.username = document.getString("name");
+        this.checkedIn = document.get("checkedIn", false);
+        this.forfeited = document.get("forfeited", false);
     }
 
     public String getID() {
         return id;
     }
 
+    public String getName() {
+        return username;
+    }
+
+    public boolean isCheckedIn() {
+        return checkedIn;
+    }
+
+    public boolean hasForfeited() {
+        return forfeited;
+    }
+
     public Document toDocument() {
         return new Document()
                 .append("id", this.id)
-                .append("name", this.username);
+                .append("name", this.username)
+                .append("checkedIn", this.checkedIn)
+                .append("forfeited", this.forfeited);
     }
 }
\ No newline at end of file
@@ -24,5 +24,93 @@
  */
 package net.jadedmc.tourneasyserver.tournament.stage;
 
+import net.jadedmc.nanoid.NanoID;
+import net.jadedmc.tourneasyserver.tournament.match.Match;
+import org.bson.Document;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
 public class Stage {
+    private final Collection<Match> matches = new LinkedHashSet<>();
+    private final String id;
+    private final String name;
+    private final StageType type;
+    private final StageStatus status;
+    private final long startTime;
+
+    // Increases every time a match result changes, so rendered brackets know when they are outdated.
+    private final long version;
+
+    public Stage(final Document document) {
+        // Only generates an id for new stages that were not given one.
+        this.id = document.containsKey("id") ? document.getString("id") : new NanoID().toString();
+        this.name = document.get("name", "Stage");
+        this.type = StageType.valueOf(document.get("type", StageType.SINGLE_ELIMINATION.name()));
+        this.status = StageStatus.valueOf(document.get("status", StageStatus.WAITING.name()));
+
+        // A start time of 0 means the stage is started manually.
+        this.startTime = ((Number) document.get("startTime", 0L)).longValue();
+        this.version = ((Number) document.get("version", 0L)).longValue();
+
+        // Load matches.
+        final Document matchesDocument = document.get("matches", new Document());
+        for(final String matchID : matchesDocument.keySet()) {
+            this.matches.add(new Match(matchesDocument.get(matchID, Document.class)));
+        }
+    }
+
+    public String getID() {
+        return id;
+    }
+
+    public Match getMatch(final String matchID) {
+        for(final Match match : this.matches) {
+            if(match.getID().equals(matchID)) {
+                return match;
+            }
+        }
+
+        return null;
+    }
+
+    public Collection<Match> getMatches() {
+        return matches;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public StageType getType() {
+        return type;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public StageStatus getStatus() {
+        return status;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public Document toDocument() {
+        final Document matchesDocument = new Document();
+        for(final Match match : this.matches) {
+            matchesDocument.append(match.getID(), match.toDocument());
+        }
+
+        return new Document()
+                .append("id", this.id)
+                .append("name", this.name)
+                .append("type", this.type.name())
+                .append("status", this.status.name())
+                .append("startTime", this.startTime)
+                .append("version", this.version)
+                .append("matches", matchesDocument);
+    }
 }
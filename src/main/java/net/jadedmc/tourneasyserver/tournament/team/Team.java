@@ -44,7 +44,14 @@ public class Team {
         return id;
     }
 
+    public String getName() {
+        return name;
+    }
+
     public Document toDocument() {
-        return new Document();
+        return new Document()
+                .append("id", this.id)
+                .append("name", this.name)
+                .append("participants", this.participants);
     }
 }
\ No newline at end of file